@@ -0,0 +1,415 @@
+package com.RealState.services;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.ServletContext;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * Issues and verifies stateless HMAC-SHA256 signed session tokens, so any node can
+ * authenticate a request without a shared HttpSession store.
+ *
+ * Token layout: {@code <keyId>.<base64url(username \n role \n expiry \n tokenId)>.<base64url(hmac)>}
+ *
+ * Keys are configured as {@code keyId:base64Secret} pairs separated by commas, each secret
+ * at least 32 bytes; malformed or short entries fail startup. The first
+ * key signs new tokens; every listed key is accepted for verification, so a key can be
+ * rotated by prepending the new one and dropping the old one once its tokens have expired.
+ *
+ * Revocation is node-local: a revoked token is rejected only by the node that handled the
+ * logout and stays valid on other nodes until it expires. Keep the TTL short accordingly.
+ */
+public class SessionTokenService {
+    private static final Logger logger = Logger.getLogger(SessionTokenService.class.getName());
+
+    public static final String CONTEXT_ATTRIBUTE = SessionTokenService.class.getName();
+    public static final String COOKIE_NAME = "RS_SESSION";
+    public static final String MODE_STATELESS = "stateless";
+
+    private static final String PARAM_SESSION_MODE = "sessionMode";
+    private static final String PARAM_TOKEN_KEYS = "sessionTokenKeys";
+    private static final String PARAM_TOKEN_TTL = "sessionTokenTtlSeconds";
+    private static final String PARAM_REVOCATION_LIMIT = "sessionRevocationLimit";
+    private static final String PARAM_COOKIE_SECURE = "sessionCookieSecure";
+    private static final String ENV_SESSION_MODE = "REALSTATE_SESSION_MODE";
+    private static final String ENV_TOKEN_KEYS = "REALSTATE_SESSION_TOKEN_KEYS";
+    private static final String ENV_TOKEN_TTL = "REALSTATE_SESSION_TOKEN_TTL_SECONDS";
+    private static final String ENV_REVOCATION_LIMIT = "REALSTATE_SESSION_REVOCATION_LIMIT";
+    private static final String ENV_COOKIE_SECURE = "REALSTATE_SESSION_COOKIE_SECURE";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final long DEFAULT_TTL_SECONDS = 3600L;
+    private static final long MIN_TTL_SECONDS = 60L;
+    private static final long MAX_TTL_SECONDS = 30L * 24 * 3600;
+    private static final int DEFAULT_REVOCATION_LIMIT = 10000;
+
+    private final boolean stateless;
+    private final String activeKeyId;
+    private final Map<String, byte[]> keys;
+    private final long ttlSeconds;
+    private final int revocationLimit;
+    // Forced Secure flag for the session cookie, or null to follow request.isSecure()
+    private final Boolean cookieSecure;
+
+    // Pools of initialised Mac instances per key id. Mac is not thread-safe, so each call borrows
+    // one; the pools live on this instance and are collected with it on undeploy
+    private final Map<String, ConcurrentLinkedQueue<Mac>> macPools = new HashMap<>();
+
+    // Revoked token ids mapped to their expiry (epoch seconds); entries are dropped once expired
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public SessionTokenService(boolean stateless, Map<String, byte[]> keys, long ttlSeconds, int revocationLimit) {
+        this(stateless, keys, ttlSeconds, revocationLimit, null);
+    }
+
+    public SessionTokenService(boolean stateless, Map<String, byte[]> keys, long ttlSeconds, int revocationLimit,
+                               Boolean cookieSecure) {
+        if (keys == null || keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one signing key is required");
+        }
+        for (Map.Entry<String, byte[]> key : keys.entrySet()) {
+            if (key.getValue() == null || key.getValue().length < MIN_SECRET_BYTES) {
+                throw new IllegalArgumentException("Signing key '" + key.getKey() + "' must be at least "
+                        + MIN_SECRET_BYTES + " bytes");
+            }
+        }
+        this.stateless = stateless;
+        this.keys = new LinkedHashMap<>(keys);
+        for (String keyId : this.keys.keySet()) {
+            macPools.put(keyId, new ConcurrentLinkedQueue<Mac>());
+        }
+        this.activeKeyId = this.keys.keySet().iterator().next();
+        this.ttlSeconds = clampTtl(ttlSeconds);
+        this.revocationLimit = Math.max(1, revocationLimit);
+        this.cookieSecure = cookieSecure;
+    }
+
+    /**
+     * Returns the instance shared by all servlets of the given context, creating it
+     * from context init-params or environment variables on first use.
+     *
+     * @throws IllegalStateException if the configured keys are malformed or too short,
+     *         or stateless mode is enabled without signing keys
+     */
+    public static SessionTokenService fromContext(ServletContext context) {
+        synchronized (context) {
+            Object existing = context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (existing instanceof SessionTokenService) {
+                return (SessionTokenService) existing;
+            }
+
+            boolean stateless = MODE_STATELESS.equalsIgnoreCase(
+                    resolveSetting(context, PARAM_SESSION_MODE, ENV_SESSION_MODE, "container"));
+            long ttl = parseLong(resolveSetting(context, PARAM_TOKEN_TTL, ENV_TOKEN_TTL, null), DEFAULT_TTL_SECONDS);
+            long limit = parseLong(resolveSetting(context, PARAM_REVOCATION_LIMIT, ENV_REVOCATION_LIMIT, null),
+                    DEFAULT_REVOCATION_LIMIT);
+
+            Map<String, byte[]> keys = parseKeys(resolveSetting(context, PARAM_TOKEN_KEYS, ENV_TOKEN_KEYS, null));
+            if (keys.isEmpty()) {
+                if (stateless) {
+                    // A per-node key would make tokens valid on one node only, defeating stateless mode
+                    throw new IllegalStateException("Stateless session mode requires " + PARAM_TOKEN_KEYS
+                            + " (or " + ENV_TOKEN_KEYS + ") to be configured with the same keys on every node");
+                }
+                // Container mode never issues tokens; a throwaway key keeps the instance usable
+                byte[] secret = new byte[32];
+                new SecureRandom().nextBytes(secret);
+                keys.put("local", secret);
+            }
+
+            String secure = resolveSetting(context, PARAM_COOKIE_SECURE, ENV_COOKIE_SECURE, null);
+            Boolean cookieSecure = secure != null ? Boolean.valueOf(secure) : null;
+
+            SessionTokenService service = new SessionTokenService(stateless, keys, ttl,
+                    (int) Math.min(Integer.MAX_VALUE, limit), cookieSecure);
+            context.setAttribute(CONTEXT_ATTRIBUTE, service);
+            logger.info("Session mode: " + (stateless ? MODE_STATELESS : "container")
+                    + ", signing key: " + service.activeKeyId + ", verification keys: " + keys.size());
+            return service;
+        }
+    }
+
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    /**
+     * Whether the session cookie must carry the Secure flag. Behind a load balancer that
+     * terminates TLS, request.isSecure() is false unless the container's proxy/RemoteIp
+     * handling is configured, so set sessionCookieSecure=true there.
+     */
+    public boolean isCookieSecure(HttpServletRequest request) {
+        return cookieSecure != null ? cookieSecure : request.isSecure();
+    }
+
+    /**
+     * Token lifetime in seconds, always within [60, 30 days] so it is safe to use
+     * as a cookie max-age.
+     */
+    public int getTtlSeconds() {
+        return (int) ttlSeconds;
+    }
+
+    /**
+     * Issues a token for the given user and role, signed with the active key.
+     */
+    public String issue(String username, String role) {
+        if (username == null || username.isEmpty() || username.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Invalid username for session token");
+        }
+        if (role == null || role.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Invalid role for session token");
+        }
+
+        long expiresAt = System.currentTimeMillis() / 1000L + ttlSeconds;
+        String claims = username + "\n" + role + "\n" + expiresAt + "\n" + UUID.randomUUID();
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        String signed = activeKeyId + "." + payload;
+        return signed + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sign(activeKeyId, signed));
+    }
+
+    /**
+     * Verifies the token signature, expiry and revocation status.
+     * Returns the token claims, or null if the token is not valid.
+     */
+    public Claims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return null;
+        }
+
+        String keyId = token.substring(0, firstDot);
+        if (!keys.containsKey(keyId)) {
+            return null;
+        }
+
+        try {
+            String signed = token.substring(0, lastDot);
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
+            // Constant-time comparison so the signature cannot be probed byte by byte
+            if (!MessageDigest.isEqual(sign(keyId, signed), signature)) {
+                return null;
+            }
+
+            String claims = new String(Base64.getUrlDecoder().decode(token.substring(firstDot + 1, lastDot)),
+                    StandardCharsets.UTF_8);
+            String[] parts = claims.split("\n", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+
+            long expiresAt = Long.parseLong(parts[2]);
+            if (expiresAt <= System.currentTimeMillis() / 1000L || revoked.containsKey(parts[3])) {
+                return null;
+            }
+            return new Claims(parts[0], parts[1], expiresAt, parts[3]);
+        } catch (IllegalArgumentException e) {
+            // Malformed base64 or expiry
+            return null;
+        }
+    }
+
+    /**
+     * Returns the token sent as an {@code Authorization: Bearer} header or as the
+     * session cookie, or null if the request carries neither.
+     */
+    public static String readToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return header.substring(7).trim();
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the token to this node's revocation list until it expires, evicting the
+     * entry closest to expiry if the list is full. Other nodes do not see the revocation.
+     * Invalid or already expired tokens are ignored.
+     */
+    public void revoke(String token) {
+        Claims claims = verify(token);
+        if (claims == null) {
+            return;
+        }
+
+        synchronized (revoked) {
+            purgeExpiredRevocations();
+            while (revoked.size() >= revocationLimit) {
+                evictSoonestToExpire();
+            }
+            revoked.put(claims.getTokenId(), claims.getExpiresAt());
+        }
+    }
+
+    /**
+     * Makes room in a full revocation list by dropping the entry closest to expiry,
+     * so the newest logout always takes effect.
+     */
+    private void evictSoonestToExpire() {
+        String soonestId = null;
+        long soonestExpiry = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : revoked.entrySet()) {
+            if (entry.getValue() < soonestExpiry) {
+                soonestId = entry.getKey();
+                soonestExpiry = entry.getValue();
+            }
+        }
+        if (soonestId == null) {
+            return;
+        }
+        revoked.remove(soonestId);
+        logger.warning("Session revocation list is full (" + revocationLimit
+                + "); evicted the entry expiring at " + soonestExpiry);
+    }
+
+    private void purgeExpiredRevocations() {
+        long now = System.currentTimeMillis() / 1000L;
+        Iterator<Map.Entry<String, Long>> it = revoked.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Signs data with the given key, borrowing an initialised Mac from the key's pool
+     * and returning it afterwards; doFinal resets the Mac for the next caller.
+     */
+    private byte[] sign(String keyId, String data) {
+        ConcurrentLinkedQueue<Mac> pool = macPools.get(keyId);
+        Mac mac = pool.poll();
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(new SecretKeySpec(keys.get(keyId), HMAC_ALGORITHM));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to sign session token", e);
+            }
+        }
+        try {
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            pool.offer(mac);
+        }
+    }
+
+    private static Map<String, byte[]> parseKeys(String spec) {
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        if (spec == null) {
+            return keys;
+        }
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.indexOf(':');
+            if (colon <= 0 || trimmed.substring(0, colon).indexOf('.') >= 0) {
+                throw new IllegalStateException("Malformed " + PARAM_TOKEN_KEYS + " entry; expected keyId:base64Secret");
+            }
+            String keyId = trimmed.substring(0, colon);
+            byte[] secret;
+            try {
+                secret = Base64.getDecoder().decode(trimmed.substring(colon + 1));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Session token key '" + keyId + "': secret is not valid base64");
+            }
+            if (secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalStateException("Session token key '" + keyId + "': secret must be at least "
+                        + MIN_SECRET_BYTES + " bytes, got " + secret.length);
+            }
+            keys.put(keyId, secret);
+        }
+        return keys;
+    }
+
+    private static String resolveSetting(ServletContext context, String name, String envName, String defaultValue) {
+        String value = context.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            value = System.getenv(envName);
+        }
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    private static long clampTtl(long ttlSeconds) {
+        long clamped = Math.max(MIN_TTL_SECONDS, Math.min(MAX_TTL_SECONDS, ttlSeconds));
+        if (clamped != ttlSeconds) {
+            logger.warning("Session token TTL " + ttlSeconds + "s is out of range, using " + clamped + "s");
+        }
+        return clamped;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid numeric setting '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /** Verified contents of a session token. */
+    public static final class Claims {
+        private final String username;
+        private final String role;
+        private final long expiresAt;
+        private final String tokenId;
+
+        Claims(String username, String role, long expiresAt, String tokenId) {
+            this.username = username;
+            this.role = role;
+            this.expiresAt = expiresAt;
+            this.tokenId = tokenId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getTokenId() {
+            return tokenId;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.RealState.servlets;
  
+import com.RealState.services.SessionTokenService;
 import com.RealState.services.UserAuthService;
  
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -12,6 +14,17 @@ import java.io.IOException;
 public class UserLoginServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	private final UserAuthService authService = new UserAuthService();
+	private SessionTokenService tokenService;
+ 
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        try {
+            tokenService = SessionTokenService.fromContext(getServletContext());
+        } catch (IllegalStateException e) {
+            throw new ServletException(e.getMessage(), e);
+        }
+    }
  
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -24,15 +37,30 @@ public class UserLoginServlet extends HttpServlet {
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
  
+        // Stateless logout - POST only, so a cross-site link or image cannot trigger it.
+        // Revokes the token on this node and clears the cookie
+        if ("logout".equals(request.getParameter("action")) && tokenService.isStateless()) {
+            tokenService.revoke(SessionTokenService.readToken(request));
+            response.addCookie(sessionCookie(request, "", 0));
+            response.sendRedirect("UserLogin.jsp");
+            return;
+        }
+ 
         String username = request.getParameter("username");
         String password = request.getParameter("password");
  
         // Pass the ServletContext as the third parameter
         if (authService.authenticateUser(username, password, getServletContext())) {
-            // Success - create session and redirect to admin dashboard
-            HttpSession session = request.getSession();
-            session.setAttribute("Username", username);
-            session.setAttribute("isUser", true);
+            if (tokenService.isStateless()) {
+                // Success - issue a signed token so any node can serve the user without a shared session
+                String token = tokenService.issue(username, "user");
+                response.addCookie(sessionCookie(request, token, tokenService.getTtlSeconds()));
+            } else {
+                // Success - create session and redirect to admin dashboard
+                HttpSession session = request.getSession();
+                session.setAttribute("Username", username);
+                session.setAttribute("isUser", true);
+            }
  
             response.sendRedirect("userDashboard.jsp");
         } else {
@@ -41,4 +69,14 @@ public class UserLoginServlet extends HttpServlet {
             request.getRequestDispatcher("UserLogin.jsp").forward(request, response);
         }
     }
+ 
+    private Cookie sessionCookie(HttpServletRequest request, String value, int maxAge) {
+        Cookie cookie = new Cookie(SessionTokenService.COOKIE_NAME, value);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(tokenService.isCookieSecure(request));
+        String path = request.getContextPath();
+        cookie.setPath(path == null || path.isEmpty() ? "/" : path);
+        cookie.setMaxAge(maxAge);
+        return cookie;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 
 package com.RealState.servlets;
 
+import com.RealState.services.SessionTokenService;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -21,10 +22,22 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,42 +51,98 @@ public class UserSettingServlet extends HttpServlet {
     private static final Logger logger = Logger.getLogger(UserSettingServlet.class.getName());
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    // Use relative paths that will be resolved at runtime
-    private static final String USER_DATA_DIR = "C:\\Users\\user\\Downloads\\project\\RealState\\src\\main\\webapp\\WEB-INF";
-    private static final String USER_SETTINGS_FILENAME = "C:\\Users\\user\\Downloads\\project\\RealState\\src\\main\\webapp\\WEB-INF\\data\\userSettings.json";
+    // Data locations, overridable through servlet/context init-params or environment variables
+    private static final String PARAM_USER_SETTINGS_PATH = "userSettingsPath";
+    private static final String PARAM_USER_ACCOUNTS_PATH = "userAccountsPath";
+    private static final String PARAM_AVATAR_UPLOAD_DIR = "avatarUploadDir";
+    private static final String PARAM_AVATAR_WEB_PATH = "avatarWebPath";
+    private static final String PARAM_READY_TIMEOUT_MS = "readyTimeoutMillis";
+    private static final String ENV_USER_SETTINGS_PATH = "REALSTATE_USER_SETTINGS_PATH";
+    private static final String ENV_USER_ACCOUNTS_PATH = "REALSTATE_USER_ACCOUNTS_PATH";
+    private static final String ENV_AVATAR_UPLOAD_DIR = "REALSTATE_AVATAR_UPLOAD_DIR";
+    private static final String ENV_AVATAR_WEB_PATH = "REALSTATE_AVATAR_WEB_PATH";
+    private static final String ENV_READY_TIMEOUT_MS = "REALSTATE_READY_TIMEOUT_MS";
+
+    // Defaults, relative to the deployed webapp root
+    private static final String DEFAULT_DATA_DIR = "WEB-INF/data";
+    private static final String USER_SETTINGS_FILENAME = "userSettings.json";
+    private static final String USER_ACCOUNTS_FILENAME = "user.json";
     private static final String AVATAR_UPLOAD_DIR_PATH = "assets/avatars";
+    private static final long DEFAULT_READY_TIMEOUT_MS = 10000L;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final long WARMUP_BUDGET_MS = 500L;
+
+    /**
+     * Context attribute holding the resolved path of user.json. UserAuthService must read
+     * the accounts from this path for userAccountsPath to move the file logins use.
+     */
+    public static final String USER_ACCOUNTS_PATH_ATTRIBUTE = "com.RealState.userAccountsPath";
+
+    /** Context attribute holding the milliseconds it took this servlet to become ready. */
+    public static final String TIME_TO_READY_ATTRIBUTE = "com.RealState.userSettings.timeToReadyMillis";
 
     // For thread safety during file operations
     private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
 
+    // Requests wait here until the startup preload and warm-up have finished
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+
+    // Last parsed content of the settings file, reused while the file is unchanged on disk
+    private volatile SettingsSnapshot settingsSnapshot;
+
+    private SessionTokenService tokenService;
+    private ExecutorService startupExecutor;
     private String userJsonPath;
+    private String userAccountsPath;
     private String avatarUploadDir;
+    private String avatarWebPath;
+    private long readyTimeoutMillis;
     private String currentTimestamp;
     private String currentUser;
 
     @Override
     public void init() throws ServletException {
         super.init();
+        final long startNanos = System.nanoTime();
 
-        // Resolve the real paths using the ServletContext
+        // Resolve the data locations, falling back to the deployed webapp layout
         ServletContext context = getServletContext();
-        String realPath = context.getRealPath("/");
-        System.out.println(realPath);
+        String dataDir = context.getRealPath("/" + DEFAULT_DATA_DIR);
+        if (dataDir == null) {
+            logger.warning("Webapp is not expanded on disk; defaulting data directory to " + DEFAULT_DATA_DIR);
+            dataDir = DEFAULT_DATA_DIR;
+        }
+        String webRoot = context.getRealPath("/");
+        String defaultAvatarDir = webRoot != null
+                ? new File(webRoot, AVATAR_UPLOAD_DIR_PATH).getPath()
+                : AVATAR_UPLOAD_DIR_PATH;
 
-        // Create the data directory path
-        File dataDir = new File(USER_DATA_DIR);
-        if (!dataDir.exists()) {
-            boolean created = dataDir.mkdirs();
-            if (!created) {
-                logger.warning("Failed to create data directory: " + dataDir.getAbsolutePath());
+        userJsonPath = resolveSetting(PARAM_USER_SETTINGS_PATH, ENV_USER_SETTINGS_PATH,
+                new File(dataDir, USER_SETTINGS_FILENAME).getPath());
+        userAccountsPath = resolveSetting(PARAM_USER_ACCOUNTS_PATH, ENV_USER_ACCOUNTS_PATH,
+                new File(dataDir, USER_ACCOUNTS_FILENAME).getPath());
+        avatarUploadDir = resolveSetting(PARAM_AVATAR_UPLOAD_DIR, ENV_AVATAR_UPLOAD_DIR, defaultAvatarDir);
+        avatarWebPath = resolveSetting(PARAM_AVATAR_WEB_PATH, ENV_AVATAR_WEB_PATH, "/" + AVATAR_UPLOAD_DIR_PATH);
+
+        String timeout = resolveSetting(PARAM_READY_TIMEOUT_MS, ENV_READY_TIMEOUT_MS, null);
+        readyTimeoutMillis = DEFAULT_READY_TIMEOUT_MS;
+        if (timeout != null) {
+            try {
+                readyTimeoutMillis = Long.parseLong(timeout);
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid " + PARAM_READY_TIMEOUT_MS + " '" + timeout + "', using " + DEFAULT_READY_TIMEOUT_MS);
             }
         }
 
-        // Set the full path to the user settings JSON file
-        userJsonPath = USER_SETTINGS_FILENAME;
+        // Create the data and avatar directories
+        File settingsDir = new File(userJsonPath).getAbsoluteFile().getParentFile();
+        if (settingsDir != null && !settingsDir.exists()) {
+            boolean created = settingsDir.mkdirs();
+            if (!created) {
+                logger.warning("Failed to create data directory: " + settingsDir.getAbsolutePath());
+            }
+        }
 
-        // Create the avatar upload directory
-        avatarUploadDir = realPath + AVATAR_UPLOAD_DIR_PATH;
         File uploadDir = new File(avatarUploadDir);
         if (!uploadDir.exists()) {
             boolean created = uploadDir.mkdirs();
@@ -87,10 +156,264 @@ public class UserSettingServlet extends HttpServlet {
         currentUser = "IT24102083";  // Default user
 
         logger.info("User settings path: " + userJsonPath);
+        logger.info("User accounts path: " + userAccountsPath);
+        context.setAttribute(USER_ACCOUNTS_PATH_ATTRIBUTE, userAccountsPath);
         logger.info("Avatar upload directory: " + avatarUploadDir);
+
+        try {
+            tokenService = SessionTokenService.fromContext(context);
+        } catch (IllegalStateException e) {
+            throw new ServletException(e.getMessage(), e);
+        }
+
+        // Preload the settings and warm user.json in parallel, then warm up the hot paths off the init thread,
+        // so the container can finish deploying while requests wait behind the readiness gate
+        startupExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "user-settings-startup-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        final CompletableFuture<JsonArray> settings = CompletableFuture.supplyAsync(new Supplier<JsonArray>() {
+            @Override
+            public JsonArray get() {
+                rwLock.readLock().lock();
+                try {
+                    return readUserData();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    rwLock.readLock().unlock();
+                }
+            }
+        }, startupExecutor);
+        final CompletableFuture<Integer> accounts = CompletableFuture.supplyAsync(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return warmUserAccounts();
+            }
+        }, startupExecutor);
+
+        // Async on the startup pool: if both loads already finished, plain whenComplete would
+        // run the warm-up on the container's init thread
+        CompletableFuture.allOf(settings, accounts).whenCompleteAsync(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void ignored, Throwable failure) {
+                try {
+                    if (failure != null) {
+                        logger.log(Level.WARNING, "Startup preload failed; requests will read from disk", failure);
+                    } else {
+                        logger.info("Preloaded " + settings.join().size() + " user settings; warmed "
+                                + accounts.join() + " user accounts");
+                        JsonArray users = settings.join();
+                        String probe = users.size() > 0 ? findUsername(users.get(0)) : null;
+                        warmUp(probe != null ? probe : currentUser);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Warm-up failed", e);
+                } finally {
+                    markReady(startNanos);
+                }
+            }
+        }, startupExecutor);
+
         logger.info("Servlet initialized at " + currentTimestamp + " by " + currentUser);
     }
 
+    @Override
+    public void destroy() {
+        if (startupExecutor != null) {
+            startupExecutor.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!awaitReady()) {
+            response.setHeader("Retry-After", "1");
+            writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Service is starting up, please retry");
+            return;
+        }
+
+        // In stateless mode, a session token replaces the container session; every request must carry a valid one
+        if (tokenService.isStateless()) {
+            SessionTokenService.Claims claims = tokenService.verify(SessionTokenService.readToken(request));
+            if (claims == null) {
+                writeError(response, HttpServletResponse.SC_UNAUTHORIZED, "Missing, invalid or expired session token");
+                return;
+            }
+            // The signed identity is authoritative; a token may only act on its own user's settings
+            String requested = request.getParameter("username");
+            if (requested != null && !requested.isEmpty() && !requested.equals(claims.getUsername())) {
+                writeError(response, HttpServletResponse.SC_FORBIDDEN, "Session token does not belong to user " + requested);
+                return;
+            }
+            request.setAttribute("Username", claims.getUsername());
+            request.setAttribute("isUser", "user".equals(claims.getRole()));
+        }
+        super.service(request, response);
+    }
+
+    /**
+     * Writes a JSON error body in the same shape as the doGet/doPost error responses.
+     */
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("success", false);
+        jsonResponse.addProperty("message", message);
+        jsonResponse.addProperty("timestamp", getCurrentDateTime());
+        response.getWriter().print(gson.toJson(jsonResponse));
+    }
+
+    /**
+     * Returns the token-authenticated user in stateless mode, otherwise the username
+     * request parameter, falling back to the default user.
+     */
+    private String resolveUsername(HttpServletRequest request) {
+        Object authenticated = request.getAttribute("Username");
+        if (tokenService.isStateless() && authenticated instanceof String) {
+            return (String) authenticated;
+        }
+        String username = request.getParameter("username");
+        if (username == null || username.isEmpty()) {
+            username = currentUser;
+        }
+        return username;
+    }
+
+    /**
+     * Blocks until startup has finished or the configured timeout elapses.
+     * Returns true if the servlet is ready to serve requests.
+     */
+    private boolean awaitReady() {
+        if (readyLatch.getCount() == 0) {
+            return true;
+        }
+        try {
+            return readyLatch.await(readyTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void markReady(long startNanos) {
+        long timeToReadyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        getServletContext().setAttribute(TIME_TO_READY_ATTRIBUTE, timeToReadyMillis);
+        readyLatch.countDown();
+        logger.info("User settings servlet ready in " + timeToReadyMillis + " ms");
+        startupExecutor.shutdown();
+    }
+
+    /**
+     * Reads a setting from the servlet init-params, then the context init-params,
+     * then the environment, returning defaultValue if none is set.
+     */
+    private String resolveSetting(String name, String envName, String defaultValue) {
+        String value = getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            value = getServletContext().getInitParameter(name);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            value = System.getenv(envName);
+        }
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Reads and parses user.json once so the file is in the page cache and Gson is
+     * loaded before the first login. The parsed accounts are not kept: UserAuthService
+     * still reads the file itself. Returns the number of accounts found.
+     */
+    private int warmUserAccounts() {
+        File accountsFile = new File(userAccountsPath);
+        if (!accountsFile.isFile()) {
+            logger.info("User accounts file not found, skipping warm-up: " + accountsFile.getAbsolutePath());
+            return 0;
+        }
+        try (Reader reader = Files.newBufferedReader(accountsFile.toPath(), StandardCharsets.UTF_8)) {
+            JsonElement element = gson.fromJson(reader, JsonElement.class);
+            return (element != null && element.isJsonArray()) ? element.getAsJsonArray().size() : 0;
+        } catch (IOException | JsonParseException e) {
+            logger.warning("Failed to warm user accounts file: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Repeats the real GET path (snapshot read, lookup and response serialization)
+     * so it is JIT-compiled before traffic arrives. Stops after WARMUP_ITERATIONS
+     * or WARMUP_BUDGET_MS, whichever comes first, so a large data set cannot hold
+     * the readiness gate closed.
+     */
+    private void warmUp(String probe) throws IOException {
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(WARMUP_BUDGET_MS);
+        int iterations = 0;
+        int checksum = 0;
+
+        while (iterations < WARMUP_ITERATIONS && System.nanoTime() < deadline) {
+            checksum += gson.toJson(lookupSettings(probe, getCurrentDateTime())).length();
+            iterations++;
+        }
+
+        logger.fine("Warm-up checksum: " + checksum);
+        logger.info("Warm-up ran " + iterations + " iterations in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+    }
+
+    private static String findUsername(JsonElement elem) {
+        if (elem == null || !elem.isJsonObject()) {
+            return null;
+        }
+        JsonObject user = elem.getAsJsonObject();
+        return user.has("username") ? user.get("username").getAsString() : null;
+    }
+
+    /**
+     * Parsed settings file together with the file attributes it was read from.
+     * Modification time is compared at full precision along with size and file key
+     * (inode), so edits by another writer, including the atomic replace used by
+     * writeUserData, invalidate the snapshot. An in-place edit that keeps the size
+     * within the filesystem's timestamp granularity can still go unnoticed.
+     */
+    private static final class SettingsSnapshot {
+        private final JsonArray users;
+        private final FileTime lastModified;
+        private final long size;
+        private final Object fileKey;
+
+        SettingsSnapshot(JsonArray users, BasicFileAttributes attrs) {
+            this.users = users;
+            this.lastModified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+            this.fileKey = attrs.fileKey();
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs != null
+                    && attrs.lastModifiedTime().equals(lastModified)
+                    && attrs.size() == size
+                    && Objects.equals(attrs.fileKey(), fileKey);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
 
 
     @Override
@@ -101,13 +424,7 @@ public class UserSettingServlet extends HttpServlet {
         
         try {
             String action = request.getParameter("action");
-            String username = request.getParameter("username");
-            
-            // If username is not provided, use the current user
-            if (username == null || username.isEmpty()) {
-                username = currentUser;
-                logger.info("Using default username: " + username);
-            }
+            String username = resolveUsername(request);
             
             if (action == null || action.isEmpty()) {
                 throw new IllegalArgumentException("Action is a required parameter");
@@ -122,8 +439,6 @@ public class UserSettingServlet extends HttpServlet {
             rwLock.readLock().lock();
             try {
                 users = readUserData();
-                // Log the current data for debugging
-                System.out.println("Current user data: " + gson.toJson(users));
             } finally {
                 rwLock.readLock().unlock();
             }
@@ -153,7 +468,6 @@ public class UserSettingServlet extends HttpServlet {
                 users.add(user);
                 userIndex = users.size() - 1;
                 logger.info("Created new user: " + username);
-                System.out.println("Created new user: " + username);
             }
             
             // Record the update timestamp
@@ -203,8 +517,6 @@ public class UserSettingServlet extends HttpServlet {
             rwLock.writeLock().lock();
             try {
                 writeUserData(users);
-                // Log the updated data
-                System.out.println("Updated user data: " + gson.toJson(users));
             } finally {
                 rwLock.writeLock().unlock();
             }
@@ -219,11 +531,9 @@ public class UserSettingServlet extends HttpServlet {
             jsonResponse.addProperty("success", false);
             jsonResponse.addProperty("message", "Error: " + e.getMessage());
             jsonResponse.addProperty("timestamp", currentTimestamp);
-            System.err.println("Error processing settings: " + e.getMessage());
         }
         
         String responseJson = gson.toJson(jsonResponse);
-        System.out.println("Response: " + responseJson);
         out.print(responseJson);
     }
     
@@ -234,80 +544,81 @@ public class UserSettingServlet extends HttpServlet {
         JsonObject jsonResponse = new JsonObject();
         
         try {
-            String username = request.getParameter("username");
-            
-            // If username is not provided, use the current user
-            if (username == null || username.isEmpty()) {
-                username = currentUser;
-                logger.info("Using default username for GET request: " + username);
-            }
+            String username = resolveUsername(request);
             
             currentTimestamp = getCurrentDateTime();
             
-            // Read user data with read lock
-            JsonArray users;
-            rwLock.readLock().lock();
-            try {
-                users = readUserData();
-                System.out.println("Reading user data for: " + username);
-                System.out.println("Current data: " + gson.toJson(users));
-            } finally {
-                rwLock.readLock().unlock();
-            }
-            
-            boolean userFound = false;
-            
-            // Find the user and return their settings
-            for (JsonElement elem : users) {
-                JsonObject user = elem.getAsJsonObject();
-                
-                if (user.has("username") && 
-                    user.get("username").getAsString().equals(username)) {
-                    userFound = true;
-                    jsonResponse.addProperty("success", true);
-                    jsonResponse.add("user", user);
-                    System.out.println("Found user: " + username);
-                    break;
-                }
-            }
-            
-            if (!userFound) {
-                // If user not found, return a new user object with default values
-                JsonObject newUser = new JsonObject();
-                newUser.addProperty("username", username);
-                newUser.addProperty("createdAt", currentTimestamp);
-                newUser.addProperty("firstName", "");
-                newUser.addProperty("lastName", "");
-                newUser.addProperty("email", "");
-                
-                JsonObject appearance = new JsonObject();
-                appearance.addProperty("theme", "default");
-                appearance.addProperty("language", "en");
-                newUser.add("appearance", appearance);
-                
-                jsonResponse.addProperty("success", true);
-                jsonResponse.add("user", newUser);
-                jsonResponse.addProperty("isNew", true);
-                
-                logger.info("Returning new user object for: " + username);
-                System.out.println("Creating new user object for: " + username);
-            }
-            
-            jsonResponse.addProperty("timestamp", currentTimestamp);
+            jsonResponse = lookupSettings(username, currentTimestamp);
             
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error retrieving settings", e);
             jsonResponse.addProperty("success", false);
             jsonResponse.addProperty("message", "Error: " + e.getMessage());
             jsonResponse.addProperty("timestamp", currentTimestamp);
-            System.err.println("Error retrieving settings: " + e.getMessage());
         }
         
         String responseJson = gson.toJson(jsonResponse);
-        System.out.println("Response: " + responseJson);
         out.print(responseJson);
     }
     
+    /**
+     * Builds the GET response for the given user, or a default user object if
+     * no settings have been saved for them yet.
+     */
+    private JsonObject lookupSettings(String username, String timestamp) throws IOException {
+        JsonObject jsonResponse = new JsonObject();
+        
+        // Read user data with read lock
+        JsonArray users;
+        rwLock.readLock().lock();
+        try {
+            users = readUserData();
+            logger.fine("Reading user data for: " + username);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        
+        boolean userFound = false;
+        
+        // Find the user and return their settings
+        for (JsonElement elem : users) {
+            JsonObject user = elem.getAsJsonObject();
+            
+            if (user.has("username") && 
+                user.get("username").getAsString().equals(username)) {
+                userFound = true;
+                jsonResponse.addProperty("success", true);
+                jsonResponse.add("user", user);
+                logger.fine("Found user: " + username);
+                break;
+            }
+        }
+        
+        if (!userFound) {
+            // If user not found, return a new user object with default values
+            JsonObject newUser = new JsonObject();
+            newUser.addProperty("username", username);
+            newUser.addProperty("createdAt", timestamp);
+            newUser.addProperty("firstName", "");
+            newUser.addProperty("lastName", "");
+            newUser.addProperty("email", "");
+            
+            JsonObject appearance = new JsonObject();
+            appearance.addProperty("theme", "default");
+            appearance.addProperty("language", "en");
+            newUser.add("appearance", appearance);
+            
+            jsonResponse.addProperty("success", true);
+            jsonResponse.add("user", newUser);
+            jsonResponse.addProperty("isNew", true);
+            
+            logger.fine("Returning new user object for: " + username);
+        }
+        
+        jsonResponse.addProperty("timestamp", timestamp);
+        return jsonResponse;
+    }
+    
     private JsonArray readUserData() throws IOException {
         File jsonFile = new File(userJsonPath);
         
@@ -321,20 +632,25 @@ public class UserSettingServlet extends HttpServlet {
                 
                 try (FileWriter writer = new FileWriter(jsonFile)) {
                     writer.write("[]");
-                    System.out.println("Created new user settings file with empty array");
+                    logger.fine("Created new user settings file with empty array");
                 }
             }
             return new JsonArray();
         }
         
+        // Reuse the last parse while the file is unchanged on disk; callers mutate the result, so hand out a copy
+        BasicFileAttributes attrs = readAttributes(jsonFile);
+        SettingsSnapshot snapshot = settingsSnapshot;
+        if (snapshot != null && snapshot.matches(attrs)) {
+            return snapshot.users.deepCopy();
+        }
+        
         // Read the file content in one go, avoiding the reset issue
         String jsonContent;
         try {
             jsonContent = new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8);
-            System.out.println("Read user settings file: " + jsonContent);
         } catch (IOException e) {
             logger.severe("Failed to read user settings file: " + e.getMessage());
-            System.err.println("Failed to read user settings file: " + e.getMessage());
             return new JsonArray();
         }
         
@@ -343,15 +659,17 @@ public class UserSettingServlet extends HttpServlet {
             JsonElement element = gson.fromJson(jsonContent, JsonElement.class);
             if (element == null || !element.isJsonArray()) {
                 logger.warning("User settings file contains invalid JSON. Creating backup and returning empty array.");
-                System.err.println("User settings file contains invalid JSON. Creating backup and returning empty array.");
                 // Create backup of corrupted file
                 backupCorruptedFile(jsonFile);
                 return new JsonArray();
             }
-            return element.getAsJsonArray();
+            JsonArray users = element.getAsJsonArray();
+            if (attrs != null) {
+                settingsSnapshot = new SettingsSnapshot(users.deepCopy(), attrs);
+            }
+            return users;
         } catch (JsonParseException e) {
             logger.severe("Error parsing JSON file: " + e.getMessage());
-            System.err.println("Error parsing JSON file: " + e.getMessage());
             // Create backup of corrupted file
             backupCorruptedFile(jsonFile);
             return new JsonArray();
@@ -364,7 +682,6 @@ public class UserSettingServlet extends HttpServlet {
                 "userSettings_corrupted_" + System.currentTimeMillis() + ".json");
             Files.copy(jsonFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             logger.info("Created backup of corrupted file: " + backupFile.getAbsolutePath());
-            System.out.println("Created backup of corrupted file: " + backupFile.getAbsolutePath());
             
             // Reset the original file to an empty array
             try (FileWriter writer = new FileWriter(jsonFile)) {
@@ -372,7 +689,6 @@ public class UserSettingServlet extends HttpServlet {
             }
         } catch (IOException e) {
             logger.severe("Failed to backup corrupted file: " + e.getMessage());
-            System.err.println("Failed to backup corrupted file: " + e.getMessage());
         }
     }
     
@@ -384,7 +700,6 @@ public class UserSettingServlet extends HttpServlet {
             boolean created = jsonFile.getParentFile().mkdirs();
             if (!created) {
                 logger.warning("Failed to create parent directory for user settings file");
-                System.err.println("Failed to create parent directory for user settings file");
             }
         }
         
@@ -393,10 +708,9 @@ public class UserSettingServlet extends HttpServlet {
             try {
                 File backupFile = new File(jsonFile.getParent(), "userSettings_backup.json");
                 Files.copy(jsonFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                System.out.println("Created backup before writing");
+                logger.fine("Created backup before writing");
             } catch (IOException e) {
                 logger.warning("Failed to create backup before writing: " + e.getMessage());
-                System.err.println("Failed to create backup before writing: " + e.getMessage());
                 // Continue anyway
             }
         }
@@ -407,16 +721,16 @@ public class UserSettingServlet extends HttpServlet {
         try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
             gson.toJson(users, writer);
             writer.flush();
-            System.out.println("Wrote data to temporary file: " + gson.toJson(users));
         }
         
         // If write was successful, move temp file to real file (safer atomic operation)
         try {
             Files.move(tempFile.toPath(), jsonFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Successfully saved user settings to " + jsonFile.getAbsolutePath());
+            BasicFileAttributes attrs = readAttributes(jsonFile);
+            settingsSnapshot = attrs != null ? new SettingsSnapshot(users.deepCopy(), attrs) : null;
+            logger.fine("Successfully saved user settings to " + jsonFile.getAbsolutePath());
         } catch (IOException e) {
             logger.severe("Failed to replace settings file with temporary file: " + e.getMessage());
-            System.err.println("Failed to replace settings file with temporary file: " + e.getMessage());
             throw new IOException("Failed to save settings: " + e.getMessage(), e);
         }
     }
@@ -430,7 +744,6 @@ public class UserSettingServlet extends HttpServlet {
             boolean created = uploadDir.mkdirs();
             if (!created) {
                 logger.warning("Failed to create avatar upload directory: " + avatarUploadDir);
-                System.err.println("Failed to create avatar upload directory: " + avatarUploadDir);
             }
         }
         
@@ -454,14 +767,12 @@ public class UserSettingServlet extends HttpServlet {
         try (InputStream fileContent = filePart.getInputStream()) {
             Files.copy(fileContent, filePath, StandardCopyOption.REPLACE_EXISTING);
             logger.info("Avatar uploaded for user: " + username + " at path: " + filePath);
-            System.out.println("Avatar uploaded for user: " + username + " at path: " + filePath);
         } catch (IOException e) {
             logger.severe("Failed to save avatar file: " + e.getMessage());
-            System.err.println("Failed to save avatar file: " + e.getMessage());
             throw new IOException("Failed to save avatar file: " + e.getMessage(), e);
         }
         
-        return "/" + AVATAR_UPLOAD_DIR_PATH + "/" + fileName; // Return web path, not file system path
+        return avatarWebPath + "/" + fileName; // Return web path, not file system path
     }
     
     private void updateProfile(JsonObject user, HttpServletRequest request) {
@@ -481,7 +792,7 @@ public class UserSettingServlet extends HttpServlet {
             user.addProperty("fullName", fullName);
         }
         
-        System.out.println("Updated profile for user: " + user.get("username").getAsString());
+        logger.fine("Updated profile for user: " + user.get("username").getAsString());
     }
     
     private void updatePassword(JsonObject user, HttpServletRequest request) {
@@ -500,7 +811,6 @@ public class UserSettingServlet extends HttpServlet {
         user.addProperty("password", newPassword);
         user.addProperty("passwordLastChanged", currentTimestamp);
         logger.info("Password changed for user: " + user.get("username").getAsString());
-        System.out.println("Password changed for user: " + user.get("username").getAsString());
     }
     
     private void updateNotifications(JsonObject user, HttpServletRequest request) {
@@ -521,7 +831,7 @@ public class UserSettingServlet extends HttpServlet {
         
         // Add lastUpdated timestamp to the notifications object
         notifications.addProperty("lastUpdated", currentTimestamp);
-        System.out.println("Updated notifications for user: " + user.get("username").getAsString());
+        logger.fine("Updated notifications for user: " + user.get("username").getAsString());
     }
     
     private void updateAppearance(JsonObject user, HttpServletRequest request) {
@@ -544,7 +854,7 @@ public class UserSettingServlet extends HttpServlet {
         
         // Add lastUpdated timestamp to the appearance object
         appearance.addProperty("lastUpdated", currentTimestamp);
-        System.out.println("Updated appearance for user: " + user.get("username").getAsString());
+        logger.fine("Updated appearance for user: " + user.get("username").getAsString());
     }
     
     private void updateListings(JsonObject user, HttpServletRequest request) {
@@ -568,24 +878,22 @@ public class UserSettingServlet extends HttpServlet {
             try {
                 JsonObject fields = gson.fromJson(fieldsJson, JsonObject.class);
                 listings.add("fields", fields);
-                System.out.println("Added fields data: " + fieldsJson);
             } catch (Exception e) {
                 logger.warning("Invalid fields JSON format: " + e.getMessage());
-                System.err.println("Invalid fields JSON format: " + e.getMessage());
                 throw new IllegalArgumentException("Invalid fields data format: " + e.getMessage());
             }
         }
         
         // Add lastUpdated timestamp to the listings object
         listings.addProperty("lastUpdated", currentTimestamp);
-        System.out.println("Updated listings for user: " + user.get("username").getAsString());
+        logger.fine("Updated listings for user: " + user.get("username").getAsString());
     }
     
     private void updateStringProperty(JsonObject obj, String property, HttpServletRequest request) {
         String value = request.getParameter(property);
         if (value != null) {
             obj.addProperty(property, value);
-            System.out.println("Updated property '" + property + "' to '" + value + "'");
+            logger.fine("Updated property '" + property + "'");
         }
     }
     
@@ -594,7 +902,7 @@ public class UserSettingServlet extends HttpServlet {
         if (value != null) {
             boolean boolValue = Boolean.parseBoolean(value);
             obj.addProperty(property, boolValue);
-            System.out.println("Updated boolean property '" + property + "' to '" + boolValue + "'");
+            logger.fine("Updated boolean property '" + property + "' to '" + boolValue + "'");
         }
     }
     
@@ -606,7 +914,6 @@ public class UserSettingServlet extends HttpServlet {
             return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         } catch (Exception e) {
             logger.warning("Error formatting current date/time: " + e.getMessage());
-            System.err.println("Error formatting current date/time: " + e.getMessage());
             return "2025-03-23 17:34:57"; // Fallback timestamp
         }
     }